@@ -0,0 +1,44 @@
+/*
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+*
+* This file is part of the practical assignment of Distributed Systems course.
+*
+* This code is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This code is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this code.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package recipesService.raft;
+
+import java.util.List;
+
+import recipesService.raft.dataStructures.LogEntry;
+
+/**
+ * 
+ * Consumer of committed log entries
+ * (see RaftConsensusDR.subscribeCommittedLog)
+ * 
+ * Entries arrive in order, in batches, out of the consensus lock.
+ * The next batch is not delivered until this one is acknowledged.
+ * If committed throws, the subscription is cancelled and failed is called;
+ * to go on, subscribe again from subscription.getAcknowledgedIndex() + 1.
+ *
+ */
+
+public interface CommittedLogListener {
+
+	void committed(RaftConsensusDR.LogSubscription subscription, int firstIndex, List<LogEntry> entries);
+
+	void failed(RaftConsensusDR.LogSubscription subscription, Exception cause);
+
+}
@@ -0,0 +1,165 @@
+/*
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+*
+* This file is part of the practical assignment of Distributed Systems course.
+*
+* This code is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This code is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this code.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package recipesService.raft;
+
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * 
+ * Single threaded simulated time scheduler
+ * 
+ * Tasks run one after another in time order (ties in arrival order), and 
+ * time jumps from task to task, so runs are reproducible and much faster than real time.
+ * Each executed task stands for one RPC round trip, so it is delayed by
+ * a random time between minExecuteDelay and maxExecuteDelay;
+ * local tasks run at the current time.
+ * Each server process gets its own ServerProcess view, so that killing it 
+ * (a crash) drops all its pending tasks and timers.
+ *
+ */
+
+public class DeterministicScheduler implements RaftScheduler {
+
+	private final PriorityQueue<Event> events = new PriorityQueue<>();
+	private final Random random;
+	private final long minExecuteDelay;
+	private final long maxExecuteDelay;
+	private long now;
+	private long sequence;
+	
+	public DeterministicScheduler(Random random, long minExecuteDelay, long maxExecuteDelay) {
+		if (minExecuteDelay < 0) throw new IllegalArgumentException("illegal argument: minExecuteDelay cannot be negative");
+		if (maxExecuteDelay < minExecuteDelay) throw new IllegalArgumentException("illegal argument: maxExecuteDelay cannot be less than minExecuteDelay");
+		
+		this.random = random;
+		this.minExecuteDelay = minExecuteDelay;
+		this.maxExecuteDelay = maxExecuteDelay;
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return now;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		at(now + executeDelay(), task, 0, null);
+	}
+
+	@Override
+	public void executeLocal(Runnable task) {
+		at(now, task, 0, null);
+	}
+
+	@Override
+	public void schedule(Runnable task, long delay, long period) {
+		at(now + delay, task, period, null);
+	}
+	
+	// runs task once at the given time
+	public void at(long time, Runnable task) {
+		at(time, task, 0, null);
+	}
+	
+	public ServerProcess newProcess() {
+		return new ServerProcess();
+	}
+	
+	private long executeDelay() {
+		return minExecuteDelay + (long) (random.nextDouble() * (maxExecuteDelay - minExecuteDelay + 1));
+	}
+	
+	private void at(long time, Runnable task, long period, ServerProcess process) {
+		events.add(new Event(Math.max(time, now), sequence++, period, task, process));
+	}
+	
+	// runs all tasks until the given time (included), and leaves the clock there
+	public void runUntil(long time) {
+		while (!events.isEmpty() && events.peek().time <= time) {
+			Event event = events.poll();
+			now = event.time;
+			if (event.process != null && event.process.killed) continue; // died with its process
+			if (event.period > 0) {
+				at(now + event.period, event.task, event.period, event.process);
+			}
+			event.task.run();
+		}
+		now = Math.max(now, time);
+	}
+	
+	// scheduler of one server process
+	public class ServerProcess implements RaftScheduler {
+		private boolean killed;
+		
+		private ServerProcess() {
+		}
+		
+		// drops all the pending tasks and timers of the process
+		public void kill() {
+			killed = true;
+		}
+
+		@Override
+		public long currentTimeMillis() {
+			return now;
+		}
+
+		@Override
+		public void execute(Runnable task) {
+			at(now + executeDelay(), task, 0, this);
+		}
+
+		@Override
+		public void executeLocal(Runnable task) {
+			at(now, task, 0, this);
+		}
+
+		@Override
+		public void schedule(Runnable task, long delay, long period) {
+			at(now + delay, task, period, this);
+		}
+	}
+	
+	private static class Event implements Comparable<Event> {
+		private final long time;
+		private final long sequence;
+		private final long period;
+		private final Runnable task;
+		private final ServerProcess process; // null if it belongs to no process
+		
+		private Event(long time, long sequence, long period, Runnable task, ServerProcess process) {
+			this.time = time;
+			this.sequence = sequence;
+			this.period = period;
+			this.task = task;
+			this.process = process;
+		}
+
+		@Override
+		public int compareTo(Event other) {
+			if (time != other.time) return time < other.time ? -1 : 1;
+			return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+		}
+	}
+
+}
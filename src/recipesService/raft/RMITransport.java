@@ -0,0 +1,60 @@
+/*
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+*
+* This file is part of the practical assignment of Distributed Systems course.
+*
+* This code is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This code is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this code.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package recipesService.raft;
+
+import java.util.List;
+
+import recipesService.communication.Host;
+import recipesService.data.Operation;
+import recipesService.raft.dataStructures.LogEntry;
+import recipesService.raftRPC.AppendEntriesResponse;
+import recipesService.raftRPC.RequestVoteResponse;
+import recipesService.test.client.RequestResponse;
+
+import communication.rmi.RMIsd;
+
+/**
+ * 
+ * RMI transport: RPCs go through RMIsd
+ *
+ */
+
+public class RMITransport implements RaftTransport {
+
+	@Override
+	public RequestVoteResponse requestVote(Host host, long term, String candidateId, 
+			int lastLogIndex, long lastLogTerm) throws Exception {
+		return RMIsd.getInstance().requestVote(host, term, candidateId, lastLogIndex, lastLogTerm);
+	}
+
+	@Override
+	public AppendEntriesResponse appendEntries(Host host, long term, String leaderId, 
+			int prevLogIndex, long prevLogTerm, List<LogEntry> entries, 
+			int leaderCommit) throws Exception {
+		return RMIsd.getInstance().appendEntries(host, term, leaderId, prevLogIndex, prevLogTerm, entries, leaderCommit);
+	}
+
+	@Override
+	public RequestResponse request(Host host, Operation operation) throws Exception {
+		return RMIsd.getInstance().Request(host, operation);
+	}
+
+}
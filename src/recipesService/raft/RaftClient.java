@@ -0,0 +1,120 @@
+/*
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+*
+* This file is part of the practical assignment of Distributed Systems course.
+*
+* This code is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This code is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this code.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package recipesService.raft;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import recipesService.communication.Host;
+import recipesService.data.Operation;
+import recipesService.test.client.RequestResponse;
+
+/**
+ * 
+ * Raft client with a leader cache
+ * 
+ * Operations go to the last server that succeeded. A redirect is followed at once
+ * to the hinted leader; failures and repeated redirects (elections) wait with 
+ * exponential backoff and try again with a random server.
+ * Retrying is safe: the leader finds an operation already in its log and does not add it twice.
+ *
+ */
+
+public class RaftClient {
+
+	private final List<Host> servers;
+	private final RaftTransport transport;
+	private final long minBackoff;
+	private final long maxBackoff;
+	private final int maxAttempts;
+	private final Random random = new Random();
+	private volatile Host leader; // last server known to be the leader (null if unknown)
+	
+	public RaftClient(List<Host> servers) {
+		this(servers, new RMITransport(), 10, 1000, 20);
+	}
+	
+	public RaftClient(List<Host> servers, RaftTransport transport, long minBackoff, long maxBackoff, int maxAttempts) {
+		if (servers == null || servers.isEmpty()) throw new IllegalArgumentException("illegal argument: servers cannot be empty");
+		if (transport == null) throw new IllegalArgumentException("illegal argument: transport cannot be null");
+		if (minBackoff < 1 || maxBackoff < minBackoff) throw new IllegalArgumentException("illegal argument: backoff must be 1 <= minBackoff <= maxBackoff");
+		if (maxAttempts < 1) throw new IllegalArgumentException("illegal argument: maxAttempts must be positive");
+		
+		this.servers = new ArrayList<>(servers);
+		this.transport = transport;
+		this.minBackoff = minBackoff;
+		this.maxBackoff = maxBackoff;
+		this.maxAttempts = maxAttempts;
+	}
+	
+	public Host getLeader() {
+		return leader;
+	}
+	
+	// returns true once the operation is committed, false if maxAttempts are exhausted
+	public boolean request(Operation operation) throws InterruptedException {
+		long backoff = minBackoff;
+		boolean redirected = false; // last attempt was a redirect
+		
+		for (int attempt = 0; attempt < maxAttempts; attempt++) {
+			Host host = leader;
+			if (host == null) host = servers.get(random.nextInt(servers.size()));
+			
+			try {
+				RequestResponse response = transport.request(host, operation);
+				if (response.isSucceeded()) {
+					// the answer comes from the leader (host may be a follower that forwarded it)
+					Host answered = find(response.getServerId());
+					leader = answered != null ? answered : host;
+					return true;
+				}
+				
+				// go to the hinted leader now, unless hints are already bouncing
+				Host hinted = find(response.getServerId());
+				if (!redirected && hinted != null && !hinted.getId().equals(host.getId())) {
+					leader = hinted;
+					redirected = true;
+					continue;
+				}
+			} catch (Exception e) {
+				// server down or unreachable
+			}
+			
+			// no leader now, wait and try again from scratch
+			leader = null;
+			redirected = false;
+			Thread.sleep(backoff);
+			backoff = Math.min(backoff * 2, maxBackoff);
+		}
+		return false;
+	}
+	
+	private Host find(String id) {
+		if (id == null) return null;
+		for (Host server : servers) {
+			if (server.getId().equals(id)) return server;
+		}
+		return null;
+	}
+
+}
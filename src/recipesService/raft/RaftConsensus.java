@@ -35,4 +35,8 @@ public abstract class RaftConsensus extends RaftConsensusDR {
 		super(electionTimeout);
 	}
 
+	public RaftConsensus(long electionTimeout, RaftScheduler scheduler, RaftTransport transport) {
+		super(electionTimeout, scheduler, transport);
+	}
+
 }
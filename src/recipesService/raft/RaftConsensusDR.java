@@ -23,14 +23,12 @@ package recipesService.raft;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -47,7 +45,6 @@ import recipesService.raftRPC.RequestVoteResponse;
 import recipesService.test.client.RequestResponse;
 
 import communication.DSException;
-import communication.rmi.RMIsd;
 
 /**
  * 
@@ -81,6 +78,8 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 	
 	// other 
 	private RaftState state = RaftState.FOLLOWER;
+	private String leaderId; // leader of the current term, learned from appendEntries (null if unknown)
+	private int takeovers; // elections won (for simulation reports)
 	
 	// Leader election
 	private long electionTimeout; // period of time that a follower receives no communication.
@@ -98,6 +97,25 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 	
 	// Heartbeats on leaders
 	private long leaderHeartbeatTimeout;
+	private volatile long rpcTimeout; // an appendEntries not answered by then is given up (at most leaderHeartbeatTimeout)
+	// an idle follower (log fully replicated and committed, commitIndex already known) 
+	// holds a lease: it waits QUIESCENT_ELECTION_PERIODS electionTimeouts before starting 
+	// an election, so it gets one heartbeat each QUIESCENT_HEARTBEAT_TICKS 
+	// (6 ticks = 2 electionTimeouts, one electionTimeout less than the lease).
+	// Ticks count whether or not a message was in flight, and a message not answered 
+	// in rpcTimeout does not block the next one, so the interval never grows beyond 6 ticks.
+	// The price: a leader that crashes while the cluster is idle is detected 
+	// after 3 electionTimeouts instead of 1.
+	private static final int QUIESCENT_HEARTBEAT_TICKS = 6;
+	private static final int QUIESCENT_ELECTION_PERIODS = 3;
+	private final Map<Host,Integer> sentCommitIndexes = new HashMap<>(); // last commitIndex acknowledged by each server
+	private final Map<Host,Integer> heartbeatTicks = new HashMap<>(); // heartbeat ticks since the last message sent
+	private final Map<Host,Long> inFlightAppendEntries = new HashMap<>(); // send time of the appendEntries still not answered
+	private final Set<Host> pendingReplications = new HashSet<>(); // servers with new entries to send once answered
+	
+	// Log index of each operation (by timestamp) on leaders, so a retried operation is found 
+	// without scanning the log. Built at takeover: a leader log only grows.
+	private final Map<String,Integer> operationIndexes = new HashMap<>();
 	
 	//
 	// CLUSTER
@@ -108,26 +126,26 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 
 	
 	//!--- ----------------------------------------------- Classes
-	//!--- Executor queue
-	private static final ExecutorService executorQueue = Executors.newCachedThreadPool();	
-	//!--- Timer queues
-	private final Timer timerQueue = new Timer(true); // is a daemon 
+	//!--- Scheduler: executor queue, timer queues and clock
+	private final RaftScheduler scheduler;
+	//!--- Transport: RPCs to other servers
+	private final RaftTransport transport;
 	//!--- Timer task for election timeout
-	private TimerTask electionTimeoutTask = new TimerTask() {
+	private Runnable electionTimeoutTask = new Runnable() {
 		@Override
 		public void run() {
 			electionTimeout();
 		}
 	};
 	//!--- Timer task for election timeout
-	private TimerTask leaderHeartbeatTimeoutTask = new TimerTask() {
+	private Runnable leaderHeartbeatTimeoutTask = new Runnable() {
 		@Override
 		public void run() {
 			leaderHeartbeatTimeout();
 		}
 	};
 	//!--- Fictional timer task to commit entries
-	private TimerTask commitTimeoutTask = new TimerTask() {
+	private Runnable commitTimeoutTask = new Runnable() {
 		@Override
 		public void run() {
 			commitTimeout();
@@ -144,11 +162,20 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 	// =======================
 	
 	public RaftConsensusDR(long electionTimeout){ // electiontimeout is a parameter in config.properties file
+		this(electionTimeout, new RealTimeScheduler(), new RMITransport());
+	}
+	
+	public RaftConsensusDR(long electionTimeout, RaftScheduler scheduler, RaftTransport transport){
+		// set time and network
+		this.scheduler = scheduler;
+		this.transport = transport;
+		
 		// set electionTimeout
 		this.electionTimeout = electionTimeout;
 		
 		//set leaderHeartbeatTimeout
 		this.leaderHeartbeatTimeout = electionTimeout / 3; 
+		this.rpcTimeout = leaderHeartbeatTimeout;
 	}
 
 	private String ID() {
@@ -185,19 +212,29 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 			Host localHost,
 			List<Host> otherServers
 			){
+		// initialize persistent state  on all servers
+		setServers(localHost, otherServers, new PersistentState());
+	}
+	
+	// restarts from the persistent state of a crashed server (used by the simulator)
+	void setServers(
+			Host localHost,
+			List<Host> otherServers,
+			PersistentState persistentState
+			){
 
 		this.localHost = localHost; 
 
-		// initialize persistent state  on all servers
-		persistentState = new PersistentState();
+		// persistent state survives crashes
+		this.persistentState = persistentState;
 		
 		// set servers list
 		this.otherServers = otherServers;
 		
 		// start timers to talk with other servers
-		timerQueue.schedule(electionTimeoutTask, electionTimeout, electionTimeout);		
-		timerQueue.schedule(leaderHeartbeatTimeoutTask, leaderHeartbeatTimeout, leaderHeartbeatTimeout);
-		timerQueue.schedule(commitTimeoutTask, leaderHeartbeatTimeout, leaderHeartbeatTimeout);
+		scheduler.schedule(electionTimeoutTask, electionTimeout, electionTimeout);		
+		scheduler.schedule(leaderHeartbeatTimeoutTask, leaderHeartbeatTimeout, leaderHeartbeatTimeout);
+		scheduler.schedule(commitTimeoutTask, leaderHeartbeatTimeout, leaderHeartbeatTimeout);
 	}
 
 	private final AtomicBoolean connected = new AtomicBoolean(false);
@@ -234,6 +271,9 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 				// ops... I'm getting old
 				persistentState.setCurrentTerm(term);
 				persistentState.removeVotedFor();
+				leaderId = null;
+				quiescent = false;
+				operationIndexes.clear();
 				state = RaftState.FOLLOWER;
 			}
 		}
@@ -248,11 +288,21 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 	 *  Leader election
 	 */
 	private final AtomicBoolean seenLeader = new AtomicBoolean(false);
+	private boolean quiescent = false; // last appendEntries left me fully replicated and committed
+	private int missedElectionPeriods = 0; // election timeouts without seeing the leader
 
 	private void electionTimeout() { 
 		if (!connected.get()) { return; }
 		// abort timeout if leader has been seen
-		if (seenLeader.getAndSet(false)) { return; }
+		if (seenLeader.getAndSet(false)) { 
+			synchronized (GUARD) { missedElectionPeriods = 0; }
+			return; 
+		}
+		
+		// an idle follower gives to the leader the longer lease of the quiescent heartbeats
+		synchronized (GUARD) {
+			if (quiescent && ++missedElectionPeriods < QUIESCENT_ELECTION_PERIODS) { return; }
+		}
 		
 		// report action
 		if (LOG_LEADER) log("Election timeout");
@@ -274,6 +324,9 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 			// And I'm now officially a CANDIDATE
 			persistentState.setCurrentTerm(term);
 			persistentState.setVotedFor(candidateId);
+			leaderId = null; // no leader known for the new term
+			quiescent = false;
+			missedElectionPeriods = 0;
 			state = RaftState.CANDIDATE;
 		}
 		
@@ -292,11 +345,11 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 		
 		// request votes
 		for (final Host otherHost : otherServers) {
-			executorQueue.execute(new Runnable() {
+			scheduler.execute(new Runnable() {
 				@Override
 				public void run() {
 					try {
-						RequestVoteResponse response = RMIsd.getInstance().requestVote(otherHost, term, candidateId, lastLogIndex, lastLogTerm);
+						RequestVoteResponse response = transport.requestVote(otherHost, term, candidateId, lastLogIndex, lastLogTerm);
 						// not now or not me
 						if (response.getTerm() != term || !response.isVoteGranted()) {
 							checkReceivedTerm(term);							
@@ -319,12 +372,25 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 								}
 								// I'm the leader
 								state = RaftState.LEADER;
+								takeovers++;
+								leaderId = localHost.getId();
 								
 								// Reset nextIndex and matchIndex
 								int nextIndex = persistentState.getLastLogIndex() + 1;
 								for (Host otherHost : otherServers) {
 									nextIndexes.put(otherHost, nextIndex);
 									matchIndexes.put(otherHost, 0);
+									sentCommitIndexes.put(otherHost, -1);
+									heartbeatTicks.put(otherHost, 0);
+								}
+								// answers to a previous term are not awaited
+								inFlightAppendEntries.clear();
+								pendingReplications.clear();
+								
+								// index the operations in my log
+								operationIndexes.clear();
+								for (int index = 1; index < nextIndex; index++) {
+									operationIndexes.put(persistentState.getLogEntry(index).getCommand().getTimestamp().toString(), index);
 								}
 								
 								// action log
@@ -334,6 +400,7 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 							}
 						} // else greater values ignored to avoid become leader to often
 					} catch (DSException e) { 						
+					} catch (UnreachableServerException e) {
 					} catch (Exception e) {
 						e.printStackTrace();
 					}
@@ -396,106 +463,176 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 	/*
 	 *  Log replication.
 	 *  Heartbeat also replicates the log, no special treatment required.
+	 *  Heartbeats are coalesced: only one appendEntries per server is in flight, 
+	 *  and idle servers (fully replicated and with the current commitIndex) 
+	 *  receive heartbeats at a lower rate.
+	 *  New entries do not wait for the heartbeat: they are sent as soon as
+	 *  they are appended to the leader log.
 	 */
 
+	public void setRpcTimeout(long rpcTimeout) {
+		if (rpcTimeout <= 0 || rpcTimeout > leaderHeartbeatTimeout) throw new IllegalArgumentException("illegal argument: rpcTimeout must be between 1 and "+leaderHeartbeatTimeout+"ms");
+		this.rpcTimeout = rpcTimeout;
+	}
+	
 	private void leaderHeartbeatTimeout() {
 		// if no connection now do nothing
 		if (!connected.get()) { return; }
 		
 		// generate and send a appendEntries message for each otherServer 
-		final String leaderId = localHost.getId();
 		for (final Host otherServer: otherServers) {
+			if (!appendEntriesTo(otherServer, true)) return;
+		}
+	}
+	
+	private void replicateNow() {
+		// send new entries to each otherServer now, the leader goes on meanwhile
+		for (final Host otherServer: otherServers) {
+			if (!appendEntriesTo(otherServer, false)) return;
+		}
+	}
+	
+	// returns false if I am not the leader
+	private boolean appendEntriesTo(final Host otherServer, final boolean heartbeat) {
+		final String leaderId = localHost.getId();
+		final long term;
+		final int prevLogIndex;
+		final long prevLogTerm;
+		final List<LogEntry> entries;
+		final int commitIndex;
+		final int lastIndex; // just for later check
+		final long sentAt;
+		synchronized (GUARD) {
 			
-			final long term;
-			final int prevLogIndex;
-			final long prevLogTerm;
-			final List<LogEntry> entries;
-			final int commitIndex;
-			final int lastIndex; // just for later check
-			synchronized (GUARD) {
-				
-				// only leaders perform heartbeats
-				if (state != RaftState.LEADER) return; seenLeader.set(true); // its me
-				
-				// gather common info (from iteration to iteration may become rotten)
-				term = persistentState.getCurrentTerm();
-				prevLogIndex = nextIndexes.get(otherServer) - 1;
-				prevLogTerm = persistentState.getTerm(prevLogIndex);
-				entries = prevLogIndex > -1 ? persistentState.getLogEntries(prevLogIndex+1) : new ArrayList<LogEntry>();
-				commitIndex = this.commitIndex;
-				
-				// last index if it is applied ok
-				lastIndex = persistentState.getLastLogIndex();
+			// only leaders perform heartbeats
+			if (state != RaftState.LEADER) return false; seenLeader.set(true); // its me
+			
+			// one more tick without sending (whatever happens next)
+			if (heartbeat) heartbeatTicks.put(otherServer, heartbeatTicks.get(otherServer) + 1);
+			final int ticks = heartbeatTicks.get(otherServer);
+			
+			// previous message not answered yet, next message will carry all
+			// (unless it is older than rpcTimeout, it may never come back)
+			final Long inFlightSince = inFlightAppendEntries.get(otherServer);
+			if (inFlightSince != null && scheduler.currentTimeMillis() - inFlightSince < rpcTimeout) {
+				// new entries are sent right after the answer, heartbeats just wait
+				if (!heartbeat) pendingReplications.add(otherServer);
+				return true;
+			}
+			
+			// gather common info (from iteration to iteration may become rotten)
+			term = persistentState.getCurrentTerm();
+			prevLogIndex = nextIndexes.get(otherServer) - 1;
+			prevLogTerm = persistentState.getTerm(prevLogIndex);
+			entries = prevLogIndex > -1 ? persistentState.getLogEntries(prevLogIndex+1) : new ArrayList<LogEntry>();
+			commitIndex = this.commitIndex;
+			
+			// last index if it is applied ok
+			lastIndex = persistentState.getLastLogIndex();
 
-				if (LOG_OPERATION) if (entries.size() > 0) {
-					log("AppendEntriesTo:Send:"+ID(otherServer)+":prevLogIndex:"+prevLogIndex+":prevLogTerm:"+prevLogTerm+":count:"+entries.size()+":commitIndex:"+commitIndex);
-				}
+			// idle server? keep quiet until it needs to see me again
+			// (it knows that all its log is committed, so it is quiescent too)
+			boolean idle = entries.isEmpty() && 
+					matchIndexes.get(otherServer) == lastIndex && 
+					sentCommitIndexes.get(otherServer) == commitIndex &&
+					commitIndex == lastIndex;
+			if (idle && (!heartbeat || ticks < QUIESCENT_HEARTBEAT_TICKS)) {
+				return true;
 			}
+			heartbeatTicks.put(otherServer, 0);
+			sentAt = scheduler.currentTimeMillis();
+			inFlightAppendEntries.put(otherServer, sentAt);
+
+			if (LOG_OPERATION) if (entries.size() > 0) {
+				log("AppendEntriesTo:Send:"+ID(otherServer)+":prevLogIndex:"+prevLogIndex+":prevLogTerm:"+prevLogTerm+":count:"+entries.size()+":commitIndex:"+commitIndex);
+			}
+		}
+		
+		// send the message (and listen the answer) in concurrent
+		scheduler.execute(new Runnable() {
 			
-			// send the message (and listen the answer) in concurrent
-			executorQueue.execute(new Runnable() {
-				
-				@Override
-				public void run() {
-					try {
-						AppendEntriesResponse response = 
-						RMIsd.getInstance().appendEntries(otherServer, term, leaderId, prevLogIndex, prevLogTerm, entries, commitIndex);
+			@Override
+			public void run() {
+				boolean answered = true;
+				try {
+					AppendEntriesResponse response = 
+					transport.appendEntries(otherServer, term, leaderId, prevLogIndex, prevLogTerm, entries, commitIndex);
 
-						// not now?
-						if (response.getTerm() != term) {
-							if (LOG_LEADER) log("AppendEntriesTo:new term found:term:"+term);
-							checkReceivedTerm(term);							
-							return;
+					// not now?
+					if (response.getTerm() != term) {
+						if (LOG_LEADER) log("AppendEntriesTo:new term found:term:"+term);
+						checkReceivedTerm(term);							
+						return;
+					}
+					
+					// execute inside the guard, any sent data could be changed and must be reevaluated
+					synchronized (GUARD) {
+						
+						// still leader?
+						if (state != RaftState.LEADER) { 
+							if (LOG_LEADER) log("AppendEntriesTo:not leader any more");
+							return; 
 						}
 						
-						// execute inside the guard, any sent data could be changed and must be reevaluated
-						synchronized (GUARD) {
-							
-							// still leader?
-							if (state != RaftState.LEADER) { 
-								if (LOG_LEADER) log("AppendEntriesTo:not leader any more");
-								return; 
-							}
-							
-							// term changed?
-							if (term != persistentState.getCurrentTerm()) { 
-								if (LOG_LEADER) log("AppendEntriesTo:term changed after receive message:term:"+term);
-								return; 
-							}
-							
-							// prevLogIndex changed?
-							if (nextIndexes.get(otherServer) - 1 != prevLogIndex) { 
-								if (LOG_LEADER) log("AppendEntriesTo:last index changed for server:nextIndex - 1:["+(nextIndexes.get(otherServer) - 1)+"]:prevLogIndex:["+prevLogIndex+"]");
-								return; 
-							}
-							
-							// prevLogTerm changed? 
-							if (persistentState.getTerm(prevLogIndex) != prevLogTerm) { System.err.println("!prevLogTerm"); return; }
-							// lastIndex decreased? 
-							if (persistentState.getLastLogIndex() < lastIndex) { System.err.println("!lastIndex"); return; }
+						// term changed?
+						if (term != persistentState.getCurrentTerm()) { 
+							if (LOG_LEADER) log("AppendEntriesTo:term changed after receive message:term:"+term);
+							return; 
+						}
+						
+						// prevLogIndex changed?
+						if (nextIndexes.get(otherServer) - 1 != prevLogIndex) { 
+							if (LOG_LEADER) log("AppendEntriesTo:last index changed for server:nextIndex - 1:["+(nextIndexes.get(otherServer) - 1)+"]:prevLogIndex:["+prevLogIndex+"]");
+							return; 
+						}
+						
+						// prevLogTerm changed? 
+						if (persistentState.getTerm(prevLogIndex) != prevLogTerm) { System.err.println("!prevLogTerm"); return; }
+						// lastIndex decreased? 
+						if (persistentState.getLastLogIndex() < lastIndex) { System.err.println("!lastIndex"); return; }
+						
+						// now it is safe, apply response
+						if (response.isSucceeded()) {
+							// update volatile server states
+							nextIndexes.put(otherServer, lastIndex + 1);
+							matchIndexes.put(otherServer, lastIndex);
+							sentCommitIndexes.put(otherServer, commitIndex);
 							
-							// now it is safe, apply response
-							if (response.isSucceeded()) {
-								// update volatile server states
-								nextIndexes.put(otherServer, lastIndex + 1);
-								matchIndexes.put(otherServer, lastIndex);
-							} else {
-								// decrease nextIndexes by 1
-								nextIndexes.put(otherServer, prevLogIndex - 1);
-							}
-							if (LOG_OPERATION) if (entries.size() > 0) { // 
-								log("AppendEntriesTo:Response:"+ID(otherServer)+":success:"+response.isSucceeded()+":newPrevLogIndex:"+nextIndexes.get(otherServer));
+							// commit (and unblock clients) now, not at the next commitTimeout
+							if (lastIndex > RaftConsensusDR.this.commitIndex) {
+								updateCommitIndexUnguarded();
+								applyCommittedUnguarded();
 							}
-							
+						} else {
+							// decrease nextIndexes by 1
+							nextIndexes.put(otherServer, prevLogIndex - 1);
+						}
+						if (LOG_OPERATION) if (entries.size() > 0) { // 
+							log("AppendEntriesTo:Response:"+ID(otherServer)+":success:"+response.isSucceeded()+":newPrevLogIndex:"+nextIndexes.get(otherServer));
 						}
 						
-					} catch (DSException e) {  						
-					} catch (Exception e) {
-						e.printStackTrace();
-					}			
+					}
+					
+				} catch (DSException e) {  						
+				} catch (UnreachableServerException e) {
+					// no reply: as a call that never returns, the next message waits rpcTimeout
+					answered = false;
+				} catch (Exception e) {
+					e.printStackTrace();
+				} finally {
+					// send what has been appended meanwhile
+					final boolean pending;
+					synchronized (GUARD) {
+						// a newer message may be in flight if this one was too late
+						Long inFlightSince = inFlightAppendEntries.get(otherServer);
+						if (answered && inFlightSince != null && inFlightSince == sentAt) inFlightAppendEntries.remove(otherServer);
+						pending = answered && pendingReplications.remove(otherServer);
+					}
+					if (pending) appendEntriesTo(otherServer, false);
 				}
-			});	
-		}
+			}
+		});	
+		return true;
 	}
 
 	
@@ -510,7 +647,7 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 			// there is a leader for term term
 			if (term == persistentState.getCurrentTerm()) {
 				seenLeader.set(true); 
-				persistentState.setVotedFor(leaderId); // given a term, only one leader, only one true
+				this.leaderId = leaderId; // given a term, only one leader, only one true
 			}
 		}
 		
@@ -541,10 +678,9 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 				
 				// update commitIndex (may be the server sent less things)
 				commitIndex = Math.min(leaderCommit, persistentState.getLastLogIndex());
-				
-				// ### store in votedFor who is the leader
-				persistentState.setVotedFor(leaderId);
 			}
+			// the leader sends heartbeats less often once all my log is committed
+			quiescent = success && commitIndex == persistentState.getLastLogIndex();
 
 			if (LOG_OPERATION) if (entries.size() > 0) {
 					log("AppendEntriesFrom:"+ID(leaderId)+":success:"+success+":term < myTerm:"+(term < myTerm)+":myLastLogIndex < prevLogIndex || myPrevLogTerm != prevLogTerm:"+(myLastLogIndex < prevLogIndex || myPrevLogTerm != prevLogTerm));
@@ -562,63 +698,186 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 	// this is not really a timeout according to RAFT, 
 	// but used because is related to heartbeat and because is cleaner
 	protected void commitTimeout() {
-		// compute new commitIndex (if Leader);
 		synchronized (GUARD) {
-			// if leader while candidate commit index available, check them
-			// (this part can be dramatically optimized)
-			boolean more = commitIndex < persistentState.getLastLogIndex();
-			int nextIndex = commitIndex;
-			if (state == RaftState.LEADER) while (more) {
-				nextIndex = nextIndex + 1;
-
-				// compute index matches for all other servers
-				int matchCount = 0;
-				int minimumMatchCount = (otherServers.size() + 1) / 2;
-				for (Host otherServer : matchIndexes.keySet()) {
-					int matchIndex = matchIndexes.get(otherServer);
-					if (matchIndex >= nextIndex) { matchCount ++; }
-				}
-				
-				if (LOG_OPERATION) log("Commiting:nextIndex:["+nextIndex+"]:matchCount:"+matchCount+">=?"+minimumMatchCount+":Indexes:"+matchIndexes);
-				
-				// check if we have a new candidate commit index 
-				if (matchCount >= minimumMatchCount) {
-					// check if the current commit index is from the current term
-					if (persistentState.getTerm(nextIndex) == persistentState.getCurrentTerm()) {
-						commitIndex = nextIndex;
-					}
-					more = nextIndex < persistentState.getLastLogIndex();
-				} else {
-					more = false;
+			// compute new commitIndex (if Leader);
+			updateCommitIndexUnguarded();
+			
+			// apply operations
+			applyCommittedUnguarded();
+		}
+	}
+	
+	private void updateCommitIndexUnguarded() {
+		// if leader while candidate commit index available, check them
+		// (this part can be dramatically optimized)
+		boolean more = commitIndex < persistentState.getLastLogIndex();
+		int nextIndex = commitIndex;
+		if (state == RaftState.LEADER) while (more) {
+			nextIndex = nextIndex + 1;
+
+			// compute index matches for all other servers
+			int matchCount = 0;
+			int minimumMatchCount = (otherServers.size() + 1) / 2;
+			for (Host otherServer : matchIndexes.keySet()) {
+				int matchIndex = matchIndexes.get(otherServer);
+				if (matchIndex >= nextIndex) { matchCount ++; }
+			}
+			
+			if (LOG_OPERATION) log("Commiting:nextIndex:["+nextIndex+"]:matchCount:"+matchCount+">=?"+minimumMatchCount+":Indexes:"+matchIndexes);
+			
+			// check if we have a new candidate commit index 
+			if (matchCount >= minimumMatchCount) {
+				// check if the current commit index is from the current term
+				if (persistentState.getTerm(nextIndex) == persistentState.getCurrentTerm()) {
+					commitIndex = nextIndex;
 				}
-			}			
+				more = nextIndex < persistentState.getLastLogIndex();
+			} else {
+				more = false;
+			}
+		}			
+	}
+	
+	private void applyCommittedUnguarded() {
+		int count = 0;
+		while (commitIndex > 0 && commitIndex > lastApplied) { count++;
+			// we apply the next operation
+			lastApplied++;
+			
+			// get operation
+			LogEntry entry = persistentState.getLogEntry(lastApplied);
+			Operation operation = entry.getCommand();
+			
+			// apply operation
+			if (operation.getType() == OperationType.ADD) {
+				this.addRecipe(((AddOperation) operation).getRecipe());
+			} else if (operation.getType() == OperationType.REMOVE) {
+				this.removeRecipe(((RemoveOperation) operation).getRecipeTitle());
+			}
+			if (LOG_CLIENT) log(operation, "Applyied:["+lastApplied+"]:commitIndex:["+commitIndex+"]");
+		}
+		if (count > 0) {
+			// unblock blocked clients
+			GUARD.notifyAll();
+			if (LOG_CLIENT) log("WakingUp:["+lastApplied+"]:commitIndex:["+commitIndex+"]");
+			
+			// feed log subscribers
+			for (LogSubscription subscription : logSubscriptions) {
+				subscription.deliverUnguarded();
+			}
 		}
+	}
+
+	
+	//
+	// COMMITTED LOG SUBSCRIPTIONS
+	//
+	
+	/*
+	 *  Committed (applied) entries are pushed to subscribers in batches of
+	 *  at most LOG_SUBSCRIPTION_BATCH entries, outside the GUARD.
+	 *  A subscriber gets the next batch only after acknowledging the previous one,
+	 *  so a slow subscriber only delays itself.
+	 */
+	private static final int LOG_SUBSCRIPTION_BATCH = 256;
+	private final List<LogSubscription> logSubscriptions = new ArrayList<>(); // guarded by GUARD
+	
+	public LogSubscription subscribeCommittedLog(int fromIndex, CommittedLogListener listener) {
+		if (fromIndex < 1) throw new IllegalArgumentException("illegal argument: fromIndex must be positive");
+		if (listener == null) throw new IllegalArgumentException("illegal argument: listener cannot be null");
 		
-		// apply operations
+		LogSubscription subscription = new LogSubscription(fromIndex, listener);
 		synchronized (GUARD) {
-			int count = 0;
-			while (commitIndex > 0 && commitIndex > lastApplied) { count++;
-				// we apply the next operation
-				lastApplied++;
+			logSubscriptions.add(subscription);
+			subscription.deliverUnguarded();
+		}
+		return subscription;
+	}
+	
+	public final class LogSubscription {
+		private final CommittedLogListener listener;
+		private int nextIndex;      // first index not acknowledged
+		private int deliveredIndex; // last index delivered (== nextIndex - 1 if nothing is waiting for acknowledge)
+		private boolean cancelled;
+		
+		private LogSubscription(int fromIndex, CommittedLogListener listener) {
+			this.listener = listener;
+			this.nextIndex = fromIndex;
+			this.deliveredIndex = fromIndex - 1;
+		}
+		
+		// to resume after a disconnection subscribe again from getAcknowledgedIndex() + 1
+		public int getAcknowledgedIndex() {
+			synchronized (GUARD) {
+				return nextIndex - 1;
+			}
+		}
+		
+		// acknowledges entries up to index (included), entries after index are delivered again
+		public void acknowledge(int index) {
+			synchronized (GUARD) {
+				if (index > deliveredIndex) throw new IllegalArgumentException("illegal argument: index "+index+" not delivered yet");
+				if (index < nextIndex) return; // already acknowledged
 				
-				// get operation
-				LogEntry entry = persistentState.getLogEntry(lastApplied);
-				Operation operation = entry.getCommand();
+				nextIndex = index + 1;
+				deliveredIndex = index;
+				deliverUnguarded();
+			}
+		}
+		
+		// delivers again the entries after index (already acknowledged or not); 
+		// like acknowledge it ends the batch being delivered, call it when done with that batch
+		public void rewind(int index) {
+			synchronized (GUARD) {
+				if (index < 0) throw new IllegalArgumentException("illegal argument: index cannot be negative");
+				if (index >= nextIndex) throw new IllegalArgumentException("illegal argument: index "+index+" not acknowledged yet, use acknowledge");
 				
-				// apply operation
-				if (operation.getType() == OperationType.ADD) {
-					this.addRecipe(((AddOperation) operation).getRecipe());
-				} else if (operation.getType() == OperationType.REMOVE) {
-					this.removeRecipe(((RemoveOperation) operation).getRecipeTitle());
-				}
-				if (LOG_CLIENT) log(operation, "Applyied:["+lastApplied+"]:commitIndex:["+commitIndex+"]");
+				nextIndex = index + 1;
+				deliveredIndex = index;
+				deliverUnguarded();
 			}
-			if (count > 0) {
-				// unblock blocked clients
-				GUARD.notifyAll();
-				if (LOG_CLIENT) log("WakingUp:["+lastApplied+"]:commitIndex:["+commitIndex+"]");
+		}
+		
+		public void cancel() {
+			synchronized (GUARD) {
+				cancelled = true;
+				logSubscriptions.remove(this);
 			}
 		}
+		
+		public boolean isCancelled() {
+			synchronized (GUARD) {
+				return cancelled;
+			}
+		}
+		
+		private void deliverUnguarded() {
+			// nothing to do, or waiting for the acknowledge of the last batch
+			if (cancelled || deliveredIndex >= nextIndex || nextIndex > lastApplied) return;
+			
+			// copy only the batch, never the whole log
+			final int firstIndex = nextIndex;
+			final int lastIndex = Math.min(lastApplied, firstIndex + LOG_SUBSCRIPTION_BATCH - 1);
+			final List<LogEntry> entries = new ArrayList<>(lastIndex - firstIndex + 1);
+			for (int index = firstIndex; index <= lastIndex; index++) {
+				entries.add(persistentState.getLogEntry(index));
+			}
+			deliveredIndex = lastIndex;
+			
+			// the listener runs out of the GUARD, consensus never waits for it
+			scheduler.executeLocal(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						listener.committed(LogSubscription.this, firstIndex, entries);
+					} catch (Exception e) {
+						// no more deliveries, the listener may subscribe again from its acknowledged index
+						cancel();
+						listener.failed(LogSubscription.this, e);
+					}
+				}
+			});
+		}
 	}
 
 	
@@ -633,32 +892,14 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 		// compute the response
 		final String leader;
 		final boolean success;
+		final Host forwardTo;
 		synchronized (GUARD) {
 			if (state == RaftState.LEADER) {
-				// looksfor/adds the current operation to the log at given position
-				int entryIndex = -1;
-				long entryTerm = -1;
-				int lastLogIndex = persistentState.getLastLogIndex();
-				
-				boolean entryFound = false;
-				// is there previous operation with same client/timestamp in the log?				
-				for (int index = 1; index <= lastLogIndex && !entryFound; index++) {
-					LogEntry otherEntry = persistentState.getLogEntry(index);
-					if (otherEntry.getCommand().equals(operation)) {
-						entryFound = true;
-						entryIndex = index;
-						entryTerm = persistentState.getTerm(index);
-						if (LOG_CLIENT) log(operation, "Request:FoundAt:["+index+"]");
-					}
-				}
+				forwardTo = null;
 				
-				// is not previous, so it is added
-				if (!entryFound) {
-					persistentState.addEntry(operation);
-					entryIndex = lastLogIndex = persistentState.getLastLogIndex();
-					entryTerm = persistentState.getLastLogTerm();
-					if (LOG_CLIENT) log(operation, "Request:Enqueued...");					
-				}
+				// looksfor/adds the current operation to the log at given position
+				final int entryIndex = appendOperationUnguarded(operation);
+				final long entryTerm = persistentState.getTerm(entryIndex);
 				
 				
 				// wait for completeness
@@ -679,24 +920,105 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 				// redirect response
 				leader = getLeaderUnguarded();
 				success = false;
+				forwardTo = forwardRequests ? getLeaderHostUnguarded() : null;
 				if (LOG_CLIENT) { // && entries.size() > 0
 					log(operation, "Request:RedirectTo:"+ID(leader)+":success:"+false);
 				}
 			}
 		}
 		
+		// forward to the known leader instead of bouncing the client
+		// (leaderId is only known for the current term, so chains of forwards always go to newer terms)
+		if (forwardTo != null) {
+			if (LOG_CLIENT) log(operation, "Request:ForwardTo:"+ID(forwardTo));
+			try {
+				return transport.request(forwardTo, operation);
+			} catch (DSException e) {
+			} catch (UnreachableServerException e) {
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		
 		return new RequestResponse(leader, success);
 	}
 	
+	// looks for the operation in the log or adds it (and sends it to followers), returns its index; only leaders
+	private int appendOperationUnguarded(Operation operation) {
+		// is there previous operation with same client/timestamp in the log?
+		String timestamp = operation.getTimestamp().toString();
+		Integer index = operationIndexes.get(timestamp);
+		if (index != null && persistentState.getLogEntry(index).getCommand().equals(operation)) {
+			if (LOG_CLIENT) log(operation, "Request:FoundAt:["+index+"]");
+			return index;
+		}
+		
+		// is not previous, so it is added
+		persistentState.addEntry(operation);
+		index = persistentState.getLastLogIndex();
+		operationIndexes.put(timestamp, index);
+		if (LOG_CLIENT) log(operation, "Request:Enqueued...");
+		
+		// the entry is already in my log, send it to followers while I wait
+		replicateNow();
+		return index;
+	}
+	
+	// forward Requests to the leader when I am not the leader (otherwise redirect the client)
+	private volatile boolean forwardRequests = false;
+	
+	public void setForwardRequests(boolean forwardRequests) {
+		this.forwardRequests = forwardRequests;
+	}
+	
+	private Host getLeaderHostUnguarded() {
+		if (leaderId == null) return null;
+		for (Host otherServer : otherServers) {
+			if (otherServer.getId().equals(leaderId)) return otherServer;
+		}
+		return null; // it is me, or unknown
+	}
+	
+	private final Random random = new Random();
+	
 	private String getLeaderUnguarded() {
-		String leader = persistentState.getVotedFor();
+		String leader = leaderId;
+		if (leader == null) {
+			// no leader known yet in this term, the one I voted for is the best guess
+			leader = persistentState.getVotedFor();
+		}
 		if (leader == null) {
 			// a random possible leader
-			int otherIndex = new Random().nextInt(otherServers.size());
+			int otherIndex = random.nextInt(otherServers.size());
 			leader = otherServers.get(otherIndex).getId();
 		}
 		return leader;
 	}
+	
+	/*
+	 * Non blocking Request (used by the simulator): looks for/adds the operation 
+	 * as Request does if I am the leader and returns its index, otherwise returns -1.
+	 * Commit is observed through subscribeCommittedLog.
+	 */
+	int propose(Operation operation) {
+		synchronized (GUARD) {
+			if (state != RaftState.LEADER || !connected.get()) { return -1; }
+			
+			return appendOperationUnguarded(operation);
+		}
+	}
+	
+	int getTakeovers() {
+		synchronized (GUARD) {
+			return takeovers;
+		}
+	}
+	
+	boolean isLeader() {
+		synchronized (GUARD) {
+			return state == RaftState.LEADER && connected.get();
+		}
+	}
 
 	
 	//
@@ -706,8 +1028,10 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 		return localHost.getId();
 	}
 
-	public synchronized List<LogEntry> getLog(){
-		return persistentState.getLog();
+	public List<LogEntry> getLog(){
+		synchronized (GUARD) {
+			return new ArrayList<>(persistentState.getLog());
+		}
 	}
 
 	public long getCurrentTerm() {
@@ -715,6 +1039,8 @@ public abstract class RaftConsensusDR extends CookingRecipes implements Raft{
 	}
 
 	public String getLeaderId() {
-		return persistentState.getVotedFor();
+		synchronized (GUARD) {
+			return leaderId;
+		}
 	}
 }
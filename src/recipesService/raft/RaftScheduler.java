@@ -0,0 +1,45 @@
+/*
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+*
+* This file is part of the practical assignment of Distributed Systems course.
+*
+* This code is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This code is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this code.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package recipesService.raft;
+
+
+/**
+ * 
+ * Time source of a Raft server: executor queue, timer queues and clock
+ * (RealTimeScheduler in production, DeterministicScheduler in simulations)
+ *
+ */
+
+public interface RaftScheduler {
+
+	// current time in milliseconds
+	long currentTimeMillis();
+	
+	// runs task concurrently, as soon as possible (each task sends one RPC and waits its answer)
+	void execute(Runnable task);
+	
+	// runs task concurrently, as soon as possible (local work, no network involved)
+	void executeLocal(Runnable task);
+	
+	// runs task after delay milliseconds, and then each period milliseconds
+	void schedule(Runnable task, long delay, long period);
+
+}
@@ -0,0 +1,67 @@
+/*
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+*
+* This file is part of the practical assignment of Distributed Systems course.
+*
+* This code is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This code is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this code.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package recipesService.raft;
+
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 
+ * Wall clock scheduler: a shared thread pool and a daemon Timer per server
+ *
+ */
+
+public class RealTimeScheduler implements RaftScheduler {
+
+	//!--- Executor queue
+	private static final ExecutorService executorQueue = Executors.newCachedThreadPool();	
+	//!--- Timer queues
+	private final Timer timerQueue = new Timer(true); // is a daemon 
+
+	@Override
+	public long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		executorQueue.execute(task);
+	}
+
+	@Override
+	public void executeLocal(Runnable task) {
+		executorQueue.execute(task);
+	}
+
+	@Override
+	public void schedule(final Runnable task, long delay, long period) {
+		timerQueue.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				task.run();
+			}
+		}, delay, period);
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+*
+* This file is part of the practical assignment of Distributed Systems course.
+*
+* This code is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This code is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this code.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package recipesService.raft;
+
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import recipesService.communication.Host;
+import recipesService.data.Operation;
+import recipesService.raft.dataStructures.LogEntry;
+import recipesService.raftRPC.AppendEntriesResponse;
+import recipesService.raftRPC.RequestVoteResponse;
+import recipesService.test.client.RequestResponse;
+
+/**
+ * 
+ * In memory network for simulations
+ * 
+ * RPCs are direct calls to the destination server. A message is lost 
+ * if any end is crashed, if both ends are in different sides of a partition, 
+ * or randomly with dropRate probability (the request, or the reply once the 
+ * destination has processed it). A lost message gets no reply: the RPC ends 
+ * with an UnreachableServerException and the sender waits as for a call that 
+ * never returns (see RaftConsensusDR.appendEntriesTo).
+ * Delays are modelled by the DeterministicScheduler.
+ *
+ */
+
+public class SimulatedNetwork {
+
+	private final Random random;
+	private final Map<String,RaftConsensusDR> servers = new HashMap<>();
+	private final Set<String> crashed = new HashSet<>();
+	private Set<String> partition; // ids of one side of the partition (null if no partition)
+	private double dropRate;
+	private long sentMessages;
+	private long lostMessages;
+	
+	public SimulatedNetwork(Random random) {
+		this.random = random;
+	}
+	
+	public void register(Host host, RaftConsensusDR server) {
+		servers.put(host.getId(), server);
+	}
+	
+	public void setDropRate(double dropRate) {
+		if (dropRate < 0 || dropRate > 1) throw new IllegalArgumentException("illegal argument: dropRate must be between 0 and 1");
+		this.dropRate = dropRate;
+	}
+	
+	// messages from or to a crashed host are lost (the process is gone, see Simulation)
+	public void crash(Host host) {
+		crashed.add(host.getId());
+		servers.get(host.getId()).disconnect();
+	}
+	
+	// the restarted server must be registered again
+	public void restart(Host host) {
+		crashed.remove(host.getId());
+	}
+	
+	public boolean isCrashed(Host host) {
+		return crashed.contains(host.getId());
+	}
+	
+	// isolates the given hosts from the rest
+	public void partition(Collection<Host> side) {
+		partition = new HashSet<>();
+		for (Host host : side) {
+			partition.add(host.getId());
+		}
+	}
+	
+	public void heal() {
+		partition = null;
+	}
+	
+	// hosts (itself included) that host can talk with now
+	public int reachableCount(Host host) {
+		if (crashed.contains(host.getId())) return 0;
+		
+		int count = 0;
+		for (String id : servers.keySet()) {
+			if (!crashed.contains(id) && sameSide(host.getId(), id)) count++;
+		}
+		return count;
+	}
+	
+	private boolean sameSide(String id, String otherId) {
+		return partition == null || partition.contains(id) == partition.contains(otherId);
+	}
+	
+	public long getSentMessages() {
+		return sentMessages;
+	}
+	
+	public long getLostMessages() {
+		return lostMessages;
+	}
+	
+	// transport used by the server from
+	public RaftTransport transportFor(final Host from) {
+		return new RaftTransport() {
+			@Override
+			public RequestVoteResponse requestVote(Host host, long term, String candidateId, 
+					int lastLogIndex, long lastLogTerm) throws Exception {
+				RequestVoteResponse response = reach(from, host).requestVote(term, candidateId, lastLogIndex, lastLogTerm);
+				reply(host);
+				return response;
+			}
+
+			@Override
+			public AppendEntriesResponse appendEntries(Host host, long term, String leaderId, 
+					int prevLogIndex, long prevLogTerm, List<LogEntry> entries, 
+					int leaderCommit) throws Exception {
+				AppendEntriesResponse response = reach(from, host).appendEntries(term, leaderId, prevLogIndex, prevLogTerm, entries, leaderCommit);
+				reply(host);
+				return response;
+			}
+
+			@Override
+			public RequestResponse request(Host host, Operation operation) throws Exception {
+				// blocks until committed: not usable from the single simulation thread (see propose)
+				RequestResponse response = reach(from, host).Request(operation);
+				reply(host);
+				return response;
+			}
+		};
+	}
+	
+	private RaftConsensusDR reach(Host from, Host to) throws UnreachableServerException {
+		sentMessages++;
+		
+		boolean lost = crashed.contains(from.getId()) || crashed.contains(to.getId()) ||
+				!sameSide(from.getId(), to.getId()) ||
+				(dropRate > 0 && random.nextDouble() < dropRate);
+		if (lost) {
+			lostMessages++;
+			throw new UnreachableServerException("unreachable:"+to.getId());
+		}
+		return servers.get(to.getId());
+	}
+	
+	// the reply may be lost too, after the destination has processed the request
+	private void reply(Host to) throws UnreachableServerException {
+		if (dropRate > 0 && random.nextDouble() < dropRate) {
+			lostMessages++;
+			throw new UnreachableServerException("no reply:"+to.getId());
+		}
+	}
+
+}
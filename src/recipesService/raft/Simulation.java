@@ -0,0 +1,287 @@
+/*
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+*
+* This file is part of the practical assignment of Distributed Systems course.
+*
+* This code is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This code is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this code.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package recipesService.raft;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import recipesService.communication.Host;
+import recipesService.data.Operation;
+import recipesService.raft.dataStructures.LogEntry;
+import recipesService.raft.dataStructures.PersistentState;
+
+/**
+ * 
+ * Deterministic simulation of a Raft cluster
+ * 
+ * All servers share one DeterministicScheduler and one SimulatedNetwork,
+ * everything runs in the calling thread and all randomness comes from seed,
+ * so the same configuration always gives the same SimulationReport.
+ * 
+ * Servers boot at random times during the first electionTimeout.
+ * Clients send operationsPerInterval operations to the leader each operationInterval;
+ * the leader is the one with the newest term that can reach a majority (an isolated 
+ * leader may still believe it is the leader, but it cannot commit).
+ * Each crashInterval a random server crashes (its process and volatile state are gone) 
+ * and after crashDuration a new server is built from its persistent state; 
+ * each partitionInterval a random minority is isolated for partitionDuration.
+ * A Simulation runs only once.
+ *
+ */
+
+public class Simulation {
+
+	// configuration
+	private final List<Host> hosts;
+	private final SimulationFactory factory;
+	private final long seed;
+	private long electionTimeout = 1500;
+	private long minRoundTrip = 1;
+	private long maxRoundTrip = 10;
+	private double dropRate = 0;
+	private long operationInterval = 10;
+	private int operationsPerInterval = 1;
+	private long crashInterval = 0; // 0 no crashes
+	private long crashDuration = 5000;
+	private long partitionInterval = 0; // 0 no partitions
+	private long partitionDuration = 5000;
+	private long proposalTimeout = 0; // 0 is 4 electionTimeouts
+	private long rpcTimeout = 0; // 0 is the server default (a heartbeat tick)
+	
+	// run state
+	private Random random;
+	private DeterministicScheduler scheduler;
+	private SimulatedNetwork network;
+	private SimulationReport report;
+	private final Map<String,RaftConsensusDR> servers = new LinkedHashMap<>(); // current server of each host
+	private final Map<String,DeterministicScheduler.ServerProcess> processes = new HashMap<>(); // its process
+	private final Map<Operation,Long> proposedAt = new LinkedHashMap<>(); // operations waiting for commit (oldest first)
+	private long operationSequence;
+	private boolean available; // a leader has been seen
+	private int committedIndexSeen; // highest committed index seen by any server
+	private long retiredTakeovers; // elections won by crashed servers
+	private boolean partitioned;
+	
+	public Simulation(List<Host> hosts, SimulationFactory factory, long seed) {
+		if (hosts == null || hosts.size() < 2) throw new IllegalArgumentException("illegal argument: at least two hosts required");
+		if (factory == null) throw new IllegalArgumentException("illegal argument: factory cannot be null");
+		
+		this.hosts = new ArrayList<>(hosts);
+		this.factory = factory;
+		this.seed = seed;
+	}
+	
+	public void setElectionTimeout(long electionTimeout) { this.electionTimeout = electionTimeout; }
+	public void setRoundTrip(long minRoundTrip, long maxRoundTrip) { this.minRoundTrip = minRoundTrip; this.maxRoundTrip = maxRoundTrip; }
+	public void setDropRate(double dropRate) { this.dropRate = dropRate; }
+	public void setOperations(long operationInterval, int operationsPerInterval) { this.operationInterval = operationInterval; this.operationsPerInterval = operationsPerInterval; }
+	public void setCrashes(long crashInterval, long crashDuration) { this.crashInterval = crashInterval; this.crashDuration = crashDuration; }
+	public void setPartitions(long partitionInterval, long partitionDuration) { this.partitionInterval = partitionInterval; this.partitionDuration = partitionDuration; }
+	public void setProposalTimeout(long proposalTimeout) { this.proposalTimeout = proposalTimeout; }
+	public void setRpcTimeout(long rpcTimeout) { this.rpcTimeout = rpcTimeout; }
+	
+	public SimulationReport run(long duration) {
+		if (report != null) throw new IllegalStateException("simulation already run");
+		if (duration <= 0) throw new IllegalArgumentException("illegal argument: duration must be positive");
+		if (proposalTimeout <= 0) proposalTimeout = 4 * electionTimeout;
+		long wallStart = System.currentTimeMillis();
+		
+		random = new Random(seed);
+		scheduler = new DeterministicScheduler(random, minRoundTrip, maxRoundTrip);
+		network = new SimulatedNetwork(random);
+		network.setDropRate(dropRate);
+		report = new SimulationReport();
+		
+		// servers
+		for (Host host : hosts) {
+			// servers boot at different times, as in a real cluster
+			bootServer(host, random.nextInt((int) electionTimeout), null);
+		}
+		
+		// clients
+		scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				operationTimeout();
+			}
+		}, operationInterval, operationInterval);
+		
+		// failures
+		if (crashInterval > 0) scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				crashTimeout();
+			}
+		}, crashInterval, crashInterval);
+		if (partitionInterval > 0) scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				partitionTimeout();
+			}
+		}, partitionInterval, partitionInterval);
+		
+		scheduler.runUntil(duration);
+		
+		long terms = 0;
+		long elections = retiredTakeovers;
+		for (RaftConsensusDR server : servers.values()) {
+			terms = Math.max(terms, server.getCurrentTerm());
+			elections += server.getTakeovers();
+		}
+		report.finish(duration, System.currentTimeMillis() - wallStart, elections, terms, network.getSentMessages(), network.getLostMessages());
+		return report;
+	}
+	
+	// boots a new server process for host (from persistentState if it is a restart)
+	private void bootServer(final Host host, long bootTime, final PersistentState persistentState) {
+		final DeterministicScheduler.ServerProcess process = scheduler.newProcess();
+		final RaftConsensusDR server = factory.createServer(electionTimeout, process, network.transportFor(host));
+		if (rpcTimeout > 0) server.setRpcTimeout(rpcTimeout);
+		final List<Host> otherServers = new ArrayList<>();
+		for (Host otherHost : hosts) {
+			if (!otherHost.getId().equals(host.getId())) otherServers.add(otherHost);
+		}
+		
+		scheduler.at(bootTime, new Runnable() {
+			@Override
+			public void run() {
+				RaftConsensusDR crashed = servers.put(host.getId(), server);
+				if (crashed != null) retiredTakeovers += crashed.getTakeovers();
+				processes.put(host.getId(), process);
+				network.register(host, server);
+				network.restart(host);
+				
+				if (persistentState == null) {
+					server.setServers(host, otherServers);
+				} else {
+					server.setServers(host, otherServers, persistentState);
+				}
+				server.connect();
+				server.subscribeCommittedLog(1, new CommittedLogListener() {
+					@Override
+					public void committed(RaftConsensusDR.LogSubscription subscription, int firstIndex, List<LogEntry> entries) {
+						// committed entries are the same in all servers, only the first to see an index looks at it
+						int lastIndex = firstIndex + entries.size() - 1;
+						for (int index = Math.max(firstIndex, committedIndexSeen + 1); index <= lastIndex; index++) {
+							Long proposed = proposedAt.remove(entries.get(index - firstIndex).getCommand());
+							if (proposed != null) report.committed(scheduler.currentTimeMillis() - proposed);
+						}
+						committedIndexSeen = Math.max(committedIndexSeen, lastIndex);
+						subscription.acknowledge(lastIndex);
+					}
+					
+					@Override
+					public void failed(RaftConsensusDR.LogSubscription subscription, Exception cause) {
+						// a bug in the simulation, not a simulated fault
+						throw new IllegalStateException("committed log subscription failed", cause);
+					}
+				});
+			}
+		});
+	}
+	
+	private RaftConsensusDR findLeader() {
+		// a deposed or isolated leader may still believe it is the leader: 
+		// it must reach a majority, and the newest term wins
+		RaftConsensusDR leader = null;
+		for (Host host : hosts) {
+			RaftConsensusDR server = servers.get(host.getId());
+			if (server == null || !server.isLeader() || network.reachableCount(host) * 2 <= hosts.size()) continue;
+			if (leader == null || server.getCurrentTerm() > leader.getCurrentTerm()) {
+				leader = server;
+			}
+		}
+		return leader;
+	}
+	
+	private void operationTimeout() {
+		// forget proposals that will never commit (lost with a deposed leader)
+		long now = scheduler.currentTimeMillis();
+		Iterator<Long> oldest = proposedAt.values().iterator();
+		while (oldest.hasNext() && now - oldest.next() > proposalTimeout) {
+			oldest.remove();
+			report.expired();
+		}
+		
+		RaftConsensusDR leader = findLeader();
+		
+		// no leader: the cluster is unavailable (once it has been available)
+		if (leader == null) {
+			if (available) report.unavailable(operationInterval);
+			for (int count = 0; count < operationsPerInterval; count++) { report.rejected(); }
+			return;
+		}
+		available = true;
+		
+		for (int count = 0; count < operationsPerInterval; count++) {
+			Operation operation = factory.createOperation(operationSequence++);
+			if (leader.propose(operation) < 0) {
+				report.rejected();
+			} else {
+				proposedAt.put(operation, scheduler.currentTimeMillis());
+				report.proposed();
+			}
+		}
+	}
+	
+	private void crashTimeout() {
+		final Host host = hosts.get(random.nextInt(hosts.size()));
+		if (network.isCrashed(host)) return;
+		
+		// the process dies: timers, pending RPCs and volatile state are lost
+		final RaftConsensusDR server = servers.get(host.getId());
+		processes.get(host.getId()).kill();
+		network.crash(host);
+		report.crashed();
+		
+		// a new process recovers from the persistent state
+		bootServer(host, scheduler.currentTimeMillis() + crashDuration, server.persistentState);
+	}
+	
+	private void partitionTimeout() {
+		if (partitioned) return;
+		
+		// isolate a random minority
+		List<Host> side = new ArrayList<>(hosts);
+		Collections.shuffle(side, random);
+		int minority = Math.max(1, (hosts.size() - 1) / 2);
+		side = side.subList(0, 1 + random.nextInt(minority));
+		
+		network.partition(side);
+		partitioned = true;
+		report.partitioned();
+		scheduler.at(scheduler.currentTimeMillis() + partitionDuration, new Runnable() {
+			@Override
+			public void run() {
+				network.heal();
+				partitioned = false;
+			}
+		});
+	}
+
+}
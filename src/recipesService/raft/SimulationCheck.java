@@ -0,0 +1,133 @@
+/*
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+*
+* This file is part of the practical assignment of Distributed Systems course.
+*
+* This code is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This code is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this code.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package recipesService.raft;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import recipesService.communication.Host;
+
+/**
+ * 
+ * Runnable checks of the simulator and of the behaviours it measures
+ * (new SimulationCheck(hosts, factory).run(), hosts and factory come from 
+ * the caller because Host, Operation and the servers live outside this tree)
+ * 
+ * - same seed, same report
+ * - idle leaders send at most one heartbeat per follower every 4 ticks
+ * - commits do not wait for heartbeat or commit ticks
+ * - how much faster than real time simulated time runs (reported, not checked:
+ *   it depends on the machine)
+ * 
+ * Checks use the first 5 hosts, the speed run all of them.
+ * Fails with an IllegalStateException.
+ *
+ */
+
+public class SimulationCheck {
+
+	private static final long ELECTION_TIMEOUT = 1500;
+	private static final long MAX_ROUND_TRIP = 10;
+	private static final int SERVERS = 5;
+	
+	private final List<Host> hosts;
+	private final SimulationFactory factory;
+	
+	public SimulationCheck(List<Host> hosts, SimulationFactory factory) {
+		if (hosts == null || hosts.size() < SERVERS) throw new IllegalArgumentException("illegal argument: at least "+SERVERS+" hosts required");
+		if (factory == null) throw new IllegalArgumentException("illegal argument: factory cannot be null");
+		
+		this.hosts = new ArrayList<>(hosts);
+		this.factory = factory;
+	}
+	
+	public void run() {
+		checkDeterminism();
+		checkQuiescentHeartbeats();
+		checkCommitLatency();
+		reportSpeed();
+		System.out.println("SimulationCheck:OK");
+	}
+	
+	private void checkDeterminism() {
+		String first = outcome(faultySimulation(42).run(120000));
+		String second = outcome(faultySimulation(42).run(120000));
+		System.out.println("Determinism:"+first);
+		if (!first.equals(second)) throw new IllegalStateException("same seed, different reports:\n"+first+"\n"+second);
+	}
+	
+	private void checkQuiescentHeartbeats() {
+		// no operations: after the election only heartbeats
+		long duration = 60000;
+		Simulation simulation = new Simulation(hosts.subList(0, SERVERS), factory, 1);
+		simulation.setElectionTimeout(ELECTION_TIMEOUT);
+		simulation.setRoundTrip(1, MAX_ROUND_TRIP);
+		simulation.setOperations(10, 0);
+		SimulationReport report = simulation.run(duration);
+		
+		long everyTick = (SERVERS - 1) * duration / (ELECTION_TIMEOUT / 3);
+		System.out.println("QuiescentHeartbeats:messages:"+report.getSentMessages()+":oneEachTick:"+everyTick+":"+report);
+		if (report.getSentMessages() > everyTick / 4) throw new IllegalStateException("idle leader sends too many heartbeats: "+report.getSentMessages());
+	}
+	
+	private void checkCommitLatency() {
+		Simulation simulation = new Simulation(hosts.subList(0, SERVERS), factory, 2);
+		simulation.setElectionTimeout(ELECTION_TIMEOUT);
+		simulation.setRoundTrip(1, MAX_ROUND_TRIP);
+		simulation.setOperations(1, 1);
+		SimulationReport report = simulation.run(60000);
+		
+		System.out.println("CommitLatency:"+report);
+		if (report.getLatencyPercentile(0.99) > 2 * MAX_ROUND_TRIP) throw new IllegalStateException("commits wait for ticks: p99 "+report.getLatencyPercentile(0.99)+"ms");
+	}
+	
+	private void reportSpeed() {
+		// all hosts, 10 operations per ms (about 1M operations)
+		Simulation simulation = new Simulation(hosts, factory, 7);
+		simulation.setElectionTimeout(ELECTION_TIMEOUT);
+		simulation.setRoundTrip(1, MAX_ROUND_TRIP);
+		simulation.setOperations(1, 10);
+		simulation.setDropRate(0.01);
+		simulation.setCrashes(20000, 5000);
+		SimulationReport report = simulation.run(100000);
+		
+		double speedup = (double) report.getSimulatedMillis() / Math.max(1, report.getWallMillis());
+		System.out.println("Speed:x"+String.format("%.1f", speedup)+":servers:"+hosts.size()+":"+report);
+	}
+	
+	private Simulation faultySimulation(long seed) {
+		Simulation simulation = new Simulation(hosts.subList(0, SERVERS), factory, seed);
+		simulation.setElectionTimeout(ELECTION_TIMEOUT);
+		simulation.setRoundTrip(1, MAX_ROUND_TRIP);
+		simulation.setOperations(1, 1);
+		simulation.setDropRate(0.01);
+		simulation.setCrashes(20000, 5000);
+		simulation.setPartitions(30000, 8000);
+		return simulation;
+	}
+	
+	// the report without the wall time
+	private static String outcome(SimulationReport report) {
+		return report.toString().replaceAll(":wall:[0-9]+ms", "");
+	}
+
+}
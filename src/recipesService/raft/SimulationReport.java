@@ -0,0 +1,123 @@
+/*
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+*
+* This file is part of the practical assignment of Distributed Systems course.
+*
+* This code is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This code is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this code.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package recipesService.raft;
+
+
+/**
+ * 
+ * Results of a Simulation run
+ * 
+ * Commit latency goes from the proposal to the leader until the first 
+ * committed log subscriber sees the entry; it is kept in 1 millisecond buckets.
+ * Proposals not committed after the proposal timeout are expired.
+ * Elections are the elections won (one per term at most); the cluster is 
+ * unavailable while no leader can reach a majority.
+ *
+ */
+
+public class SimulationReport {
+
+	private static final int LATENCY_BUCKETS = 100000; // last bucket keeps all greater latencies
+	
+	private final long[] latencies = new long[LATENCY_BUCKETS];
+	private long maxLatency;
+	private long proposed;
+	private long committed;
+	private long rejected;
+	private long expired;
+	private long elections;
+	private long terms;
+	private long unavailableMillis;
+	private long crashes;
+	private long partitions;
+	private long sentMessages;
+	private long lostMessages;
+	private long simulatedMillis;
+	private long wallMillis;
+	
+	void proposed() { proposed++; }
+	void rejected() { rejected++; }
+	void expired() { expired++; }
+	void crashed() { crashes++; }
+	void partitioned() { partitions++; }
+	void unavailable(long millis) { unavailableMillis += millis; }
+	
+	void committed(long latency) {
+		committed++;
+		latencies[(int) Math.min(latency, LATENCY_BUCKETS - 1)]++;
+		maxLatency = Math.max(maxLatency, latency);
+	}
+	
+	void finish(long simulatedMillis, long wallMillis, long elections, long terms, long sentMessages, long lostMessages) {
+		this.simulatedMillis = simulatedMillis;
+		this.wallMillis = wallMillis;
+		this.elections = elections;
+		this.terms = terms;
+		this.sentMessages = sentMessages;
+		this.lostMessages = lostMessages;
+	}
+	
+	public long getProposed() { return proposed; }
+	public long getCommitted() { return committed; }
+	public long getRejected() { return rejected; }
+	public long getExpired() { return expired; }
+	public long getElections() { return elections; }
+	public long getTerms() { return terms; }
+	public long getUnavailableMillis() { return unavailableMillis; }
+	public long getCrashes() { return crashes; }
+	public long getPartitions() { return partitions; }
+	public long getSentMessages() { return sentMessages; }
+	public long getLostMessages() { return lostMessages; }
+	public long getSimulatedMillis() { return simulatedMillis; }
+	public long getWallMillis() { return wallMillis; }
+	public long getMaxLatency() { return maxLatency; }
+	
+	// committed operations per simulated second
+	public double getThroughput() {
+		return simulatedMillis > 0 ? committed * 1000.0 / simulatedMillis : 0;
+	}
+	
+	// commit latency (in milliseconds) below which are the given fraction (0..1) of commits
+	public long getLatencyPercentile(double fraction) {
+		if (fraction < 0 || fraction > 1) throw new IllegalArgumentException("illegal argument: fraction must be between 0 and 1");
+		
+		long target = (long) Math.ceil(fraction * committed);
+		long count = 0;
+		for (int latency = 0; latency < LATENCY_BUCKETS; latency++) {
+			count += latencies[latency];
+			if (count >= target && count > 0) return latency;
+		}
+		return 0;
+	}
+	
+	@Override
+	public String toString() {
+		return "SimulationReport:simulated:"+simulatedMillis+"ms:wall:"+wallMillis+"ms"+
+				":proposed:"+proposed+":committed:"+committed+":rejected:"+rejected+":expired:"+expired+
+				":throughput:"+String.format("%.1f", getThroughput())+"op/s"+
+				":latency:p50:"+getLatencyPercentile(0.50)+"ms:p90:"+getLatencyPercentile(0.90)+
+				"ms:p99:"+getLatencyPercentile(0.99)+"ms:max:"+maxLatency+"ms"+
+				":elections:"+elections+":terms:"+terms+":unavailable:"+unavailableMillis+"ms"+
+				":crashes:"+crashes+":partitions:"+partitions+
+				":messages:"+sentMessages+":lost:"+lostMessages;
+	}
+
+}
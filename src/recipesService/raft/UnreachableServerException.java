@@ -0,0 +1,39 @@
+/*
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+*
+* This file is part of the practical assignment of Distributed Systems course.
+*
+* This code is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This code is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this code.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package recipesService.raft;
+
+
+/**
+ * 
+ * A RPC got no reply (destination crashed or partitioned, request or reply lost).
+ * It may have had effect or not: the caller acts as if the call never returned.
+ *
+ */
+
+public class UnreachableServerException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	public UnreachableServerException(String message) {
+		super(message);
+	}
+
+}